@@ -74,8 +74,11 @@ public class AcceptPreference {
             return (o.quality - quality);
         }
 
+        /**
+         * @return a copy of the media range of this entry.
+         */
         public MimeType getMediaType() {
-            return mediaType;
+            return MimeUtils.copy(mediaType);
         }
 
         /**
@@ -104,13 +107,31 @@ public class AcceptPreference {
      *         AcceptPreference quivalent to a single "*&#47;*" header value is returned.
      */
     public static AcceptPreference fromRequest(HttpServletRequest request) {
+        return fromRequest(request, null);
+    }
+
+    /**
+     * Same as {@link #fromRequest(javax.servlet.http.HttpServletRequest)} but
+     * looking up the header values in a {@link HeaderCache}.
+     *
+     * @param request the request to extract the {@link AcceptPreference} from.
+     * @param cache the cache of parsed header values, or <code>null</code>
+     *        to parse them every time.
+     * @return the {@link AcceptPreference}s reflecting all Accept-Headers in 
+     *         the request, in case the request contains no header an 
+     *         AcceptPreference quivalent to a single "*&#47;*" header value is returned.
+     */
+    public static AcceptPreference fromRequest(HttpServletRequest request, HeaderCache cache) {
         ArrayList<AcceptPreference> headers = new ArrayList<AcceptPreference>();
         Enumeration<String> strHeaders = request.getHeaders(RFC7231_HEADER);
         while (strHeaders.hasMoreElements()) {
-            headers.add(fromString(strHeaders.nextElement()));
+            String header = strHeaders.nextElement();
+            headers.add(cache == null ? fromString(header) : cache.get(header));
         }
         if (headers.isEmpty()) {
-            return fromString("*/*");
+            return cache == null ? fromString("*/*") : cache.get("*/*");
+        } else if (headers.size() == 1) {
+            return headers.get(0);
         } else {
             return fromHeaders(headers);
         }
@@ -169,8 +190,20 @@ public class AcceptPreference {
         return new AcceptPreference(entries);
     }
 
+    private static final long FNV64_OFFSET_BASIS = 0xcbf29ce484222325L;
+
+    private static final long FNV64_PRIME = 0x100000001b3L;
+
     private final TreeSet<AcceptHeaderEntry> entries;
 
+    /**
+     * The entries in the same order as in the TreeSet, for allocation-free
+     * iteration in both directions.
+     */
+    private final AcceptHeaderEntry[] entryArray;
+
+    private String normalizedString;
+
     protected AcceptPreference(List<String> entryStrings) {
         entries = new TreeSet<AcceptHeaderEntry>();
         if ((entryStrings == null) || (entryStrings.size() == 0)) {
@@ -184,10 +217,14 @@ public class AcceptPreference {
                 }
             }
         }
+        entryArray = entries.toArray(new AcceptHeaderEntry[entries.size()]);
     }
 
     protected AcceptPreference(TreeSet<AcceptHeaderEntry> entries) {
-        this.entries = entries;
+        // Copied so that later changes to the argument cannot make it
+        // disagree with entryArray.
+        this.entries = new TreeSet<AcceptHeaderEntry>(entries);
+        entryArray = this.entries.toArray(new AcceptHeaderEntry[this.entries.size()]);
     }
 
     /**
@@ -204,10 +241,10 @@ public class AcceptPreference {
 
     /**
      * @return the {@link MimeType} with the highest quality parameter amongst the ones
-     * specified in this {@link AcceptPreference}.
+     * specified in this {@link AcceptPreference}. The result is a copy.
      */
     public MimeType getPreferredAccept() {
-        return entries.first().mediaType;
+        return MimeUtils.copy(entries.first().mediaType);
     }
 
     /**
@@ -236,23 +273,169 @@ public class AcceptPreference {
      * @return a value from 0 to 1000 to indicate the quality in which type is accepted
      */
     public int getAcceptedQuality(MimeType type) {
-        for (AcceptHeaderEntry acceptHeaderEntry : entries) {
-            if (isSameOrSubtype(type, acceptHeaderEntry.mediaType)) {
-                return acceptHeaderEntry.quality;
+        AcceptHeaderEntry entry = getAcceptingEntry(type);
+        return entry == null ? 0 : entry.quality;
+    }
+
+    /**
+     * Ranks a set of supported types by the preference expressed in this
+     * {@link AcceptPreference}, e.g. to list the alternatives in a 300
+     * Multiple Choices response. The result is the same as sorting the types
+     * with <code>new MimeTypeComparator(this)</code> and calling
+     * {@link #getAcceptedQuality(MimeType)} for each of them, but it is
+     * computed in a single pass.
+     *
+     * This method allocates new working memory on every call. On hot paths
+     * keep the {@link CandidateSet} (building it sorts the types) and a
+     * per-thread {@link RankedTypes.Scratch} and call
+     * {@link #rank(CandidateSet, RankedTypes.Scratch)} instead.
+     *
+     * @param candidates the supported types.
+     * @return the ranked types, including the ones accepted with quality 0.
+     */
+    public RankedTypes rank(CandidateSet candidates) {
+        return rank(candidates, new RankedTypes.Scratch());
+    }
+
+    /**
+     * Same as {@link #rank(CandidateSet)} but using working memory supplied
+     * by the caller. Apart from the returned {@link RankedTypes} nothing is
+     * allocated once the scratch has grown to the size of the candidates.
+     *
+     * @param candidates the supported types.
+     * @param scratch working memory, not to be shared between threads.
+     * @return the ranked types, including the ones accepted with quality 0.
+     */
+    public RankedTypes rank(CandidateSet candidates, RankedTypes.Scratch scratch) {
+        MimeType[] types = candidates.types;
+        int size = types.length;
+        scratch.ensureCapacity(size);
+        int[] order = scratch.order;
+        int[] qualities = scratch.qualities;
+        MimeType[] ranges = scratch.ranges;
+
+        int acceptableCount = 0;
+        for (int i = 0; i < size; i++) {
+            AcceptHeaderEntry entry = getAcceptingEntry(types[i]);
+            int quality = 0;
+            if (entry != null) {
+                quality = entry.quality;
+                ranges[i] = entry.mediaType;
             }
+            qualities[i] = quality;
+            if (quality > 0) {
+                acceptableCount++;
+            }
+            // Stable insertion by descending quality, candidates are already
+            // in tie-breaking order.
+            int position = i;
+            while (position > 0 && qualities[order[position - 1]] < quality) {
+                order[position] = order[position - 1];
+                position--;
+            }
+            order[position] = i;
         }
 
-        Object[] reverseEntries = entries.toArray();
-        for (int i = entries.size() - 1; i >= 0; i--) {
-            AcceptHeaderEntry entry = (AcceptHeaderEntry) reverseEntries[i];
+        MimeType[] rankedTypes = new MimeType[size];
+        int[] rankedQualities = new int[size];
+        MimeType[] rankedRanges = new MimeType[size];
+        for (int i = 0; i < size; i++) {
+            int index = order[i];
+            rankedTypes[i] = types[index];
+            rankedQualities[i] = qualities[index];
+            rankedRanges[i] = ranges[index];
+            ranges[index] = null;
+        }
+        return new RankedTypes(rankedTypes, rankedQualities, rankedRanges, acceptableCount);
+    }
+
+    /**
+     * @return the first entry whose media range includes type or, failing
+     * that, the last entry whose media range is included in type.
+     */
+    private AcceptHeaderEntry getAcceptingEntry(MimeType type) {
+        for (AcceptHeaderEntry entry : entryArray) {
+            if (isSameOrSubtype(type, entry.mediaType)) {
+                return entry;
+            }
+        }
+
+        for (int i = entryArray.length - 1; i >= 0; i--) {
+            AcceptHeaderEntry entry = entryArray[i];
             if (isSameOrSubtype(entry.mediaType, type)) {
-                return entry.quality;
+                return entry;
             }
         }
 
-        return 0;
+        return null;
     }
     
+    /**
+     * Returns a canonical form of this {@link AcceptPreference}. Headers that
+     * only differ in formatting (whitespace, order of the entries or of their
+     * parameters, case of the types, an explicit q=1) have the same normalized
+     * form. Example:
+     * <code>
+     *      fromString("text/html;q=0.5, image/*").toNormalizedString();
+     * </code>
+     * returns "image/*,text/html;q=0.5".
+     *
+     * @return the normalized form of this {@link AcceptPreference}.
+     */
+    public String toNormalizedString() {
+        String result = normalizedString;
+        if (result == null) {
+            StringBuilder builder = new StringBuilder();
+            for (AcceptHeaderEntry entry : entries) {
+                if (builder.length() > 0) {
+                    builder.append(RFC7231_MEDIA_SEPARATOR);
+                }
+                MimeUtils.appendNormalized(entry.mediaType, builder);
+                if (entry.quality != 1000) {
+                    builder.append(";q=");
+                    appendQuality(entry.quality, builder);
+                }
+            }
+            result = builder.toString();
+            // Benign race: every thread computes the same immutable value.
+            normalizedString = result;
+        }
+        return result;
+    }
+
+    /**
+     * @return a 64-bit fingerprint (FNV-1a) of the normalized form, suitable
+     * as a compact cache key. Equal normalized forms always have the same
+     * fingerprint.
+     */
+    public long getFingerprint() {
+        String normalized = toNormalizedString();
+        long hash = FNV64_OFFSET_BASIS;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= FNV64_PRIME;
+        }
+        return hash;
+    }
+
+    private static void appendQuality(int quality, StringBuilder target) {
+        if (quality < 0) {
+            target.append('-');
+            quality = -quality;
+        }
+        target.append(quality / 1000);
+        int fraction = quality % 1000;
+        if (fraction != 0) {
+            target.append('.');
+            String digits = Integer.toString(fraction + 1000).substring(1);
+            int end = digits.length();
+            while (digits.charAt(end - 1) == '0') {
+                end--;
+            }
+            target.append(digits, 0, end);
+        }
+    }
+
     @Override
     public String toString() {
         return entries.toString();
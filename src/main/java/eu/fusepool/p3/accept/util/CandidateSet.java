@@ -0,0 +1,57 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.fusepool.p3.accept.util;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.TreeSet;
+
+import javax.activation.MimeType;
+
+/**
+ * An immutable set of {@link MimeType}s supported by a resource, prepared
+ * once so that it can be ranked against many {@link AcceptPreference}s with
+ * {@link AcceptPreference#rank(CandidateSet)}. Building a candidate set
+ * sorts the types, so create it once per resource rather than per request.
+ *
+ * The types are kept in the order of {@link MimeTypeComparator} without
+ * accept header, which is the order used to break ties between types
+ * accepted with the same quality. The set keeps the {@link MimeType}
+ * instances it was constructed with, they must not be modified afterwards.
+ */
+public final class CandidateSet {
+
+    final MimeType[] types;
+
+    /**
+     * @param types the supported {@link MimeType}s, duplicates are ignored.
+     */
+    public CandidateSet(Collection<MimeType> types) {
+        TreeSet<MimeType> sorted = new TreeSet<MimeType>(new MimeTypeComparator());
+        sorted.addAll(types);
+        this.types = sorted.toArray(new MimeType[sorted.size()]);
+    }
+
+    /**
+     * @return the number of types in this set.
+     */
+    public int size() {
+        return types.length;
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(types);
+    }
+}
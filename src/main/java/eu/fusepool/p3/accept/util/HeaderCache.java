@@ -0,0 +1,135 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.fusepool.p3.accept.util;
+
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * A bounded, thread-safe cache of parsed Accept header values. Clients tend
+ * to send the same few headers over and over again, so looking them up here
+ * avoids parsing them on every request. Lookups of cached headers do not
+ * lock.
+ *
+ * Headers added with {@link #preload(Collection)}, e.g. by {@link Warmup},
+ * are pinned: they are never evicted and do not count against the maximum
+ * size. Other headers are added on first use; when there are more of them
+ * than the maximum size, arbitrary ones are evicted to make room, so a
+ * stream of one-off headers cannot push out the preloaded corpus.
+ *
+ * The same {@link AcceptPreference} is returned to all callers asking for a
+ * header. Its methods return copies of the media types it holds, so callers
+ * cannot change it.
+ *
+ * @see AcceptPreference#fromRequest(javax.servlet.http.HttpServletRequest, HeaderCache)
+ */
+public class HeaderCache {
+
+    public static final int DEFAULT_MAX_SIZE = 256;
+
+    private final ConcurrentMap<String, AcceptPreference> pinned
+            = new ConcurrentHashMap<String, AcceptPreference>();
+
+    private final ConcurrentMap<String, AcceptPreference> cache
+            = new ConcurrentHashMap<String, AcceptPreference>();
+
+    private final int maxSize;
+
+    public HeaderCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * @param maxSize the maximum number of header values kept in the cache
+     *        besides the preloaded ones.
+     */
+    public HeaderCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Cache size must be positive.");
+        }
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * @param header the value of an Accept header.
+     * @return the {@link AcceptPreference} for header, parsed with
+     * {@link AcceptPreference#fromString(String)} if it isn't cached yet.
+     */
+    public AcceptPreference get(String header) {
+        if (header == null) {
+            throw new NullPointerException("Header string can't be null.");
+        }
+        AcceptPreference result = pinned.get(header);
+        if (result == null) {
+            result = cache.get(header);
+        }
+        if (result == null) {
+            result = AcceptPreference.fromString(header);
+            AcceptPreference previous = cache.putIfAbsent(header, result);
+            if (previous != null) {
+                return previous;
+            }
+            if (cache.size() > maxSize) {
+                evict(header);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Parses and caches the given header values, which are then never
+     * evicted.
+     *
+     * @param headers the values of Accept headers.
+     */
+    public void preload(Collection<String> headers) {
+        for (String header : headers) {
+            AcceptPreference preference = get(header);
+            pinned.put(header, preference);
+            cache.remove(header);
+        }
+    }
+
+    /**
+     * @return the number of header values in the cache, including the
+     * preloaded ones.
+     */
+    public int size() {
+        return pinned.size() + cache.size();
+    }
+
+    /**
+     * Removes all header values from the cache, including the preloaded
+     * ones.
+     */
+    public void clear() {
+        pinned.clear();
+        cache.clear();
+    }
+
+    /**
+     * Removes headers other than the one just added until the cache is back
+     * within its bound.
+     */
+    private void evict(String added) {
+        Iterator<String> headers = cache.keySet().iterator();
+        while (cache.size() > maxSize && headers.hasNext()) {
+            if (!headers.next().equals(added)) {
+                headers.remove();
+            }
+        }
+    }
+}
@@ -13,7 +13,13 @@
  */
 package eu.fusepool.p3.accept.util;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.List;
+
 import javax.activation.MimeType;
+import javax.activation.MimeTypeParameterList;
 import javax.activation.MimeTypeParseException;
 
 /**
@@ -28,6 +34,8 @@ public class MimeUtils {
 
     public static final String MIME_TYPE_WILDCARD = "*";
 
+    private static final String TSPECIALS = "()<>@,;:/[]?=\\\"";
+
     /**
      * Creates a new {@link javax.activation.MimeType} from a string, but issues a
      * {@link RuntimeException} instead of a checked {@link MimeTypeParseException}
@@ -56,6 +64,25 @@ public class MimeUtils {
         }
     }
 
+    /**
+     * @return a new {@link MimeType} with the same types and parameters as
+     * type, for handing out types that are shared internally.
+     */
+    static MimeType copy(MimeType type) {
+        try {
+            MimeType result = new MimeType(type.getPrimaryType(), type.getSubType());
+            MimeTypeParameterList parameters = type.getParameters();
+            Enumeration<?> names = parameters.getNames();
+            while (names.hasMoreElements()) {
+                String name = (String) names.nextElement();
+                result.setParameter(name, parameters.get(name));
+            }
+            return result;
+        } catch (MimeTypeParseException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
     /**
      * @param t1
      * @param t2
@@ -76,4 +103,66 @@ public class MimeUtils {
             return type1.equalsIgnoreCase(type2) && subtype1.equalsIgnoreCase(subtype2);
         }
     }
+
+    /**
+     * Returns a canonical string for a {@link MimeType}: the base type
+     * followed by its parameters sorted by name, e.g. "text/html;a=1;b=2".
+     * Values that are not tokens are quoted as in an HTTP header. Two media
+     * types that only differ in the order of their parameters have the same
+     * normalized form.
+     *
+     * @param type the {@link MimeType} to normalize.
+     * @return the normalized form of type.
+     */
+    public static String normalize(MimeType type) {
+        StringBuilder result = new StringBuilder();
+        appendNormalized(type, result);
+        return result.toString();
+    }
+
+    static void appendNormalized(MimeType type, StringBuilder target) {
+        target.append(type.getBaseType());
+        MimeTypeParameterList parameters = type.getParameters();
+        if (parameters.isEmpty()) {
+            return;
+        }
+        List<String> names = new ArrayList<String>(parameters.size());
+        Enumeration<?> nameEnum = parameters.getNames();
+        while (nameEnum.hasMoreElements()) {
+            names.add((String) nameEnum.nextElement());
+        }
+        Collections.sort(names);
+        for (String name : names) {
+            target.append(';').append(name).append('=');
+            appendQuoted(parameters.get(name), target);
+        }
+    }
+
+    /**
+     * Appends value, quoted if it is not a token, in the same way as
+     * {@link MimeTypeParameterList#toString()}.
+     */
+    private static void appendQuoted(String value, StringBuilder target) {
+        boolean isToken = value.length() > 0;
+        for (int i = 0; isToken && i < value.length(); i++) {
+            isToken = isTokenChar(value.charAt(i));
+        }
+        if (isToken) {
+            target.append(value);
+            return;
+        }
+        target.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                target.append('\\');
+            }
+            target.append(c);
+        }
+        target.append('"');
+    }
+
+    private static boolean isTokenChar(char c) {
+        return c > ' ' && c < 127 && TSPECIALS.indexOf(c) < 0;
+    }
 }
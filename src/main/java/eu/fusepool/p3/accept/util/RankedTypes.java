@@ -0,0 +1,143 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.fusepool.p3.accept.util;
+
+import javax.activation.MimeType;
+
+/**
+ * The types of a {@link CandidateSet} ordered by the preference of an
+ * {@link AcceptPreference}, as returned by
+ * {@link AcceptPreference#rank(CandidateSet)}. The order is the same as
+ * sorting the types with a {@link MimeTypeComparator} constructed with the
+ * {@link AcceptPreference}. The ranking cannot be changed once computed.
+ * {@link #getType(int)} returns the instances held by the
+ * {@link CandidateSet}, which must not be modified while the set is in use.
+ */
+public final class RankedTypes {
+
+    /**
+     * Reusable working memory for
+     * {@link AcceptPreference#rank(CandidateSet, RankedTypes.Scratch)}.
+     * A scratch object must not be used by more than one thread at a time.
+     */
+    public static final class Scratch {
+
+        int[] order = new int[0];
+        int[] qualities = new int[0];
+        MimeType[] ranges = new MimeType[0];
+
+        void ensureCapacity(int size) {
+            if (order.length < size) {
+                order = new int[size];
+                qualities = new int[size];
+                ranges = new MimeType[size];
+            }
+        }
+    }
+
+    private final MimeType[] types;
+    private final int[] qualities;
+    private final MimeType[] matchedRanges;
+    private final int acceptableCount;
+
+    RankedTypes(MimeType[] types, int[] qualities, MimeType[] matchedRanges, int acceptableCount) {
+        this.types = types;
+        this.qualities = qualities;
+        this.matchedRanges = matchedRanges;
+        this.acceptableCount = acceptableCount;
+    }
+
+    /**
+     * @return the number of ranked types, this is the size of the
+     * {@link CandidateSet}.
+     */
+    public int size() {
+        return types.length;
+    }
+
+    /**
+     * @return the number of types accepted with a quality greater than 0,
+     * these are the first ones in the ranking.
+     */
+    public int getAcceptableCount() {
+        return acceptableCount;
+    }
+
+    /**
+     * Returns the type to serve, i.e. the first of the ranking if it is
+     * accepted at all. Unlike {@link AcceptPreference#getPreferredAccept(java.util.Set)}
+     * the choice does not depend on the iteration order of a set, so it is
+     * the same in every JVM. Use it together with {@link #getVariantKey()}:
+     * the key only identifies this type.
+     *
+     * @return the selected type, or <code>null</code> if none of the
+     * candidates is accepted with a quality greater than 0.
+     */
+    public MimeType getSelectedType() {
+        return acceptableCount == 0 ? null : types[0];
+    }
+
+    /**
+     * Returns a stable key identifying the representation selected by
+     * {@link #getSelectedType()}, suitable to store variants in a shared
+     * HTTP cache: all requests that select the same type get the same key.
+     *
+     * @return the normalized form of the selected type, or <code>null</code>
+     * if no type is selected.
+     */
+    public String getVariantKey() {
+        MimeType selected = getSelectedType();
+        return selected == null ? null : MimeUtils.normalize(selected);
+    }
+
+    /**
+     * @param index the position in the ranking, 0 being the preferred type.
+     * @return the type at the given position.
+     */
+    public MimeType getType(int index) {
+        return types[index];
+    }
+
+    /**
+     * @param index the position in the ranking, 0 being the preferred type.
+     * @return the quality, from 0 to 1000, with which the type at the given
+     * position is accepted.
+     */
+    public int getQuality(int index) {
+        return qualities[index];
+    }
+
+    /**
+     * @param index the position in the ranking, 0 being the preferred type.
+     * @return the media range of the accept header that determined the
+     * quality of the type at the given position, or <code>null</code> if
+     * no media range matches it. The result is a copy.
+     */
+    public MimeType getMatchedRange(int index) {
+        MimeType range = matchedRanges[index];
+        return range == null ? null : MimeUtils.copy(range);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder("[");
+        for (int i = 0; i < types.length; i++) {
+            if (i > 0) {
+                result.append(", ");
+            }
+            result.append(types[i]).append(" with q=").append(qualities[i]).append(';');
+        }
+        return result.append(']').toString();
+    }
+}
@@ -0,0 +1,184 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.fusepool.p3.accept.util;
+
+import java.util.*;
+
+import javax.activation.MimeType;
+import javax.activation.MimeTypeParseException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import static eu.fusepool.p3.accept.util.MimeUtils.mimeType;
+
+/**
+ * Eagerly initializes the classes of this library and exercises the parsing
+ * and negotiation code so that it is loaded and compiled by the JIT before
+ * the first requests are served. Meant to be called once at startup, e.g.:
+ * <code>
+ *     HeaderCache cache = new HeaderCache();
+ *     Warmup.warmUp(cache);
+ * </code>
+ */
+public final class Warmup {
+
+    private static final Logger logger = LoggerFactory.getLogger(Warmup.class);
+
+    /**
+     * Accept headers as sent by common browsers, HTTP libraries and RDF
+     * clients.
+     */
+    public static final List<String> DEFAULT_SEED_HEADERS = Collections.unmodifiableList(Arrays.asList(
+            "*/*",
+            "text/html,application/xhtml+xml,application/xml;q=0.9,*/*;q=0.8",
+            "text/html,application/xhtml+xml,application/xml;q=0.9,image/webp,image/apng,*/*;q=0.8",
+            "text/html, image/gif, image/jpeg, */*; q=.2",
+            "image/png,image/*;q=0.8,*/*;q=0.5",
+            "application/json",
+            "application/json, text/plain, */*",
+            "application/ld+json, application/json;q=0.9",
+            "text/turtle,application/rdf+xml;q=0.9,application/n-triples;q=0.8,*/*;q=0.1"));
+
+    public static final List<MimeType> DEFAULT_SUPPORTED_TYPES = Collections.unmodifiableList(Arrays.asList(
+            mimeType("text/turtle"),
+            mimeType("application/rdf+xml"),
+            mimeType("application/ld+json"),
+            mimeType("application/n-triples"),
+            mimeType("application/xhtml+xml"),
+            mimeType("text/html"),
+            mimeType("application/json"),
+            mimeType("text/plain")));
+
+    /**
+     * Number of rounds over the seed headers, enough for the hot methods to
+     * be compiled by the optimizing compiler.
+     */
+    public static final int DEFAULT_ITERATIONS = 2000;
+
+    /**
+     * Prevents the JIT from eliminating the warmup work as dead code.
+     */
+    private static volatile int sink;
+
+    private Warmup() {
+    }
+
+    /**
+     * @return true if every entry of header is a valid media range with a
+     * numeric q value, i.e. parsing it neither drops entries nor fails.
+     */
+    static boolean isWellFormed(String header) {
+        for (String entry : header.split(AcceptPreference.RFC7231_MEDIA_SEPARATOR)) {
+            try {
+                String q = new MimeType(entry).getParameter("q");
+                if (q != null) {
+                    Float.parseFloat(q);
+                }
+            } catch (MimeTypeParseException ex) {
+                return false;
+            } catch (NumberFormatException ex) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Warms up with the default seed headers and supported types, without
+     * populating a cache.
+     */
+    public static void warmUp() {
+        warmUp(null);
+    }
+
+    /**
+     * Warms up with the default seed headers and supported types.
+     *
+     * @param cache the cache to populate with the seed headers, or
+     *        <code>null</code>.
+     */
+    public static void warmUp(HeaderCache cache) {
+        warmUp(cache, DEFAULT_SEED_HEADERS, DEFAULT_SUPPORTED_TYPES, DEFAULT_ITERATIONS);
+    }
+
+    /**
+     * Loads and initializes the classes used for negotiation, populates the
+     * cache with the seed headers and then parses and negotiates every seed
+     * header against the supported types the given number of times. Seed
+     * headers with entries that cannot be parsed are logged once and
+     * skipped, so that the warmup does not log a warning on every round.
+     *
+     * @param cache the cache to populate with the seed headers, or
+     *        <code>null</code>.
+     * @param seedHeaders the Accept header values to warm up with.
+     * @param supportedTypes the {@link MimeType}s to negotiate against.
+     * @param iterations the number of rounds over the seed headers.
+     */
+    public static void warmUp(HeaderCache cache, Collection<String> seedHeaders,
+            Collection<MimeType> supportedTypes, int iterations) {
+        long start = System.nanoTime();
+
+        // Runs the static initializers of MimeUtils and MimeTypeComparator
+        // and loads the javax.activation classes.
+        int result = MimeTypeComparator.countWildChars(MimeUtils.WILDCARD_TYPE);
+
+        List<String> headers = new ArrayList<String>(seedHeaders.size());
+        List<AcceptPreference> preferences = new ArrayList<AcceptPreference>(seedHeaders.size());
+        for (String header : seedHeaders) {
+            if (!isWellFormed(header)) {
+                logger.warn("Ignoring malformed seed header \"" + header + "\"");
+                continue;
+            }
+            AcceptPreference preference;
+            if (cache == null) {
+                preference = AcceptPreference.fromString(header);
+            } else {
+                cache.preload(Collections.singletonList(header));
+                preference = cache.get(header);
+            }
+            result += preference.getEntries().size();
+            headers.add(header);
+            preferences.add(preference);
+        }
+
+        Set<MimeType> supported = new HashSet<MimeType>(supportedTypes);
+        CandidateSet candidates = new CandidateSet(supportedTypes);
+        RankedTypes.Scratch scratch = new RankedTypes.Scratch();
+        List<MimeType> sorted = new ArrayList<MimeType>(supportedTypes);
+        for (int i = 0; i < iterations; i++) {
+            for (String header : headers) {
+                result += AcceptPreference.fromString(header).getEntries().size();
+            }
+            for (AcceptPreference preference : preferences) {
+                MimeType preferred = preference.getPreferredAccept(supported);
+                if (preferred != null) {
+                    result += preference.getAcceptedQuality(preferred);
+                }
+                RankedTypes ranked = preference.rank(candidates, scratch);
+                result += ranked.getAcceptableCount();
+                String variantKey = ranked.getVariantKey();
+                if (variantKey != null) {
+                    result += variantKey.length();
+                }
+                result += (int) preference.getFingerprint();
+                Collections.sort(sorted, new MimeTypeComparator(preference));
+            }
+        }
+        sink = result;
+
+        logger.info("Warmed up accept header negotiation with " + headers.size() + " headers and "
+                + iterations + " iterations in " + (System.nanoTime() - start) / 1000000 + " ms");
+    }
+}
@@ -0,0 +1,158 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.fusepool.p3.accept.util;
+
+import java.util.*;
+
+import javax.activation.MimeType;
+
+import static eu.fusepool.p3.accept.util.MimeUtils.mimeType;
+
+/**
+ * Generates random Accept headers and sets of supported types from a seed,
+ * so that a failing case can be reproduced.
+ */
+class AcceptHeaderGenerator {
+
+    private static final String[] PRIMARY_TYPES = {
+        "text", "image", "application", "audio", "*", "Text"
+    };
+
+    private static final String[] SUB_TYPES = {
+        "html", "plain", "turtle", "png", "json", "rdf+xml", "ld+json", "*", "HTML"
+    };
+
+    private static final String[] PARAMETERS = {
+        "level=1", "level=2", "charset=utf-8", "profile=\"http://example.org/p\""
+    };
+
+    private static final String[] QUALITIES = {
+        "q=1", "q=1.0", "q=0", "q=0.0", "q=.5", "q=0.5", "q=0.25", "q=0.3", "q=0.7",
+        "q=0.001", "q=0.999", "Q=0.8"
+    };
+
+    private static final String[] MALFORMED = {
+        "", " ", "text", "*", "*; q=.2", "/html", "text/", "text/html;q", "text/html;;",
+        "text/html;q=abc", "text/html;q=", "te xt/html"
+    };
+
+    private static final String[] WHITESPACE = {
+        "", "", "", " ", "  ", "\t"
+    };
+
+    private final Random random;
+
+    AcceptHeaderGenerator(long seed) {
+        random = new Random(seed);
+    }
+
+    /**
+     * @return a header with up to 8 media ranges, a few of them malformed.
+     */
+    String nextHeader() {
+        return nextHeader(true);
+    }
+
+    /**
+     * @param allowMalformed whether some media ranges may be malformed.
+     * @return a header with up to 8 media ranges.
+     */
+    String nextHeader(boolean allowMalformed) {
+        int count = 1 + random.nextInt(8);
+        StringBuilder header = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) {
+                header.append(pick(WHITESPACE)).append(',').append(pick(WHITESPACE));
+            }
+            if (allowMalformed && random.nextInt(20) == 0) {
+                header.append(pick(MALFORMED));
+            } else {
+                header.append(nextMediaRange());
+            }
+        }
+        return header.toString();
+    }
+
+    /**
+     * @return up to 6 supported types with distinct string forms, mostly
+     * concrete.
+     */
+    Set<MimeType> nextSupportedTypes() {
+        int count = 1 + random.nextInt(6);
+        Set<String> seen = new HashSet<String>();
+        Set<MimeType> result = new LinkedHashSet<MimeType>();
+        for (int i = 0; i < count; i++) {
+            MimeType type = nextType();
+            if (seen.add(type.toString())) {
+                result.add(type);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @return the media ranges of header in random order.
+     */
+    String shuffle(String header) {
+        List<String> ranges = new ArrayList<String>(Arrays.asList(header.split(",")));
+        Collections.shuffle(ranges, random);
+        StringBuilder result = new StringBuilder();
+        for (String range : ranges) {
+            if (result.length() > 0) {
+                result.append(',');
+            }
+            result.append(range);
+        }
+        return result.toString();
+    }
+
+    /**
+     * @return a media type, rarely with a wildcard or a parameter.
+     */
+    MimeType nextType() {
+        String primary = pick(PRIMARY_TYPES);
+        String sub = pick(SUB_TYPES);
+        if (random.nextInt(10) != 0) {
+            while ("*".equals(primary)) {
+                primary = pick(PRIMARY_TYPES);
+            }
+            while ("*".equals(sub)) {
+                sub = pick(SUB_TYPES);
+            }
+        }
+        String type = primary + "/" + sub;
+        if (random.nextInt(5) == 0) {
+            type += ";" + pick(PARAMETERS);
+        }
+        return mimeType(type);
+    }
+
+    private String nextMediaRange() {
+        StringBuilder range = new StringBuilder();
+        String primary = pick(PRIMARY_TYPES);
+        range.append(primary).append('/');
+        range.append("*".equals(primary) ? "*" : pick(SUB_TYPES));
+        if (random.nextInt(4) == 0) {
+            range.append(pick(WHITESPACE)).append(';').append(pick(WHITESPACE)).append(pick(PARAMETERS));
+        }
+        if (random.nextInt(3) != 0) {
+            range.append(pick(WHITESPACE)).append(';').append(pick(WHITESPACE)).append(pick(QUALITIES));
+        }
+        return range.toString();
+    }
+
+    private String pick(String[] values) {
+        return values[random.nextInt(values.length)];
+    }
+}
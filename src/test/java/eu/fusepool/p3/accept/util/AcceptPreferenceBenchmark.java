@@ -0,0 +1,214 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.fusepool.p3.accept.util;
+
+import java.util.*;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.activation.MimeType;
+
+/**
+ * Times {@link AcceptPreference} against {@link ReferenceAcceptPreference}
+ * on the same generated headers and logs the speed-up of each operation.
+ * Not part of the default test run, use <code>mvn test -Pbenchmark</code>.
+ */
+public class AcceptPreferenceBenchmark {
+
+    private static final Logger logger = LoggerFactory.getLogger(AcceptPreferenceBenchmark.class);
+
+    private static final int TIMING_ROUNDS = 31;
+
+    private static final int HEADERS = 500;
+
+    /**
+     * Prevents the JIT from eliminating the timed loops as dead code.
+     */
+    private static volatile int sink;
+
+    /**
+     * An operation timed on the same inputs with both implementations.
+     */
+    private abstract static class Operation {
+
+        final String name;
+
+        Operation(String name) {
+            this.name = name;
+        }
+
+        abstract int runReference();
+
+        abstract int runCurrent();
+    }
+
+    @Test
+    public void reportSpeedUp() {
+        // Only well-formed headers: AcceptPreference logs malformed entries,
+        // the reference drops them silently, so they would time the logger.
+        AcceptHeaderGenerator generator = new AcceptHeaderGenerator(AcceptPreferenceDifferentialTest.SEED);
+        final List<String> headers = new ArrayList<String>();
+        final List<Set<MimeType>> supportedSets = new ArrayList<Set<MimeType>>();
+        final List<CandidateSet> candidateSets = new ArrayList<CandidateSet>();
+        final List<ReferenceAcceptPreference> references = new ArrayList<ReferenceAcceptPreference>();
+        final List<AcceptPreference> currents = new ArrayList<AcceptPreference>();
+        while (headers.size() < HEADERS) {
+            String header = generator.nextHeader(false);
+            headers.add(header);
+            references.add(ReferenceAcceptPreference.fromString(header));
+            currents.add(AcceptPreference.fromString(header));
+            Set<MimeType> supported = generator.nextSupportedTypes();
+            supportedSets.add(supported);
+            candidateSets.add(new CandidateSet(supported));
+        }
+        final RankedTypes.Scratch scratch = new RankedTypes.Scratch();
+
+        Operation[] operations = {
+            new Operation("fromString") {
+                @Override
+                int runReference() {
+                    int result = 0;
+                    for (String header : headers) {
+                        result += ReferenceAcceptPreference.fromString(header).getEntries().size();
+                    }
+                    return result;
+                }
+
+                @Override
+                int runCurrent() {
+                    int result = 0;
+                    for (String header : headers) {
+                        result += AcceptPreference.fromString(header).getEntries().size();
+                    }
+                    return result;
+                }
+            },
+            new Operation("getAcceptedQuality") {
+                @Override
+                int runReference() {
+                    int result = 0;
+                    for (int i = 0; i < HEADERS; i++) {
+                        for (MimeType type : supportedSets.get(i)) {
+                            result += references.get(i).getAcceptedQuality(type);
+                        }
+                    }
+                    return result;
+                }
+
+                @Override
+                int runCurrent() {
+                    int result = 0;
+                    for (int i = 0; i < HEADERS; i++) {
+                        for (MimeType type : supportedSets.get(i)) {
+                            result += currents.get(i).getAcceptedQuality(type);
+                        }
+                    }
+                    return result;
+                }
+            },
+            new Operation("getPreferredAccept(Set)") {
+                @Override
+                int runReference() {
+                    int result = 0;
+                    for (int i = 0; i < HEADERS; i++) {
+                        result += references.get(i).getPreferredAccept(supportedSets.get(i)) == null ? 0 : 1;
+                    }
+                    return result;
+                }
+
+                @Override
+                int runCurrent() {
+                    int result = 0;
+                    for (int i = 0; i < HEADERS; i++) {
+                        result += currents.get(i).getPreferredAccept(supportedSets.get(i)) == null ? 0 : 1;
+                    }
+                    return result;
+                }
+            },
+            new Operation("ranking") {
+                @Override
+                int runReference() {
+                    int result = 0;
+                    for (int i = 0; i < HEADERS; i++) {
+                        List<MimeType> sorted = new ArrayList<MimeType>(supportedSets.get(i));
+                        Collections.sort(sorted, new ReferenceAcceptPreference.Comparator(references.get(i)));
+                        result += sorted.size();
+                    }
+                    return result;
+                }
+
+                @Override
+                int runCurrent() {
+                    int result = 0;
+                    for (int i = 0; i < HEADERS; i++) {
+                        result += currents.get(i).rank(candidateSets.get(i), scratch).size();
+                    }
+                    return result;
+                }
+            }
+        };
+
+        StringBuilder report = new StringBuilder("Speed-up of AcceptPreference over the reference implementation"
+                + " (median of " + TIMING_ROUNDS + " rounds over " + HEADERS + " headers):");
+        for (Operation operation : operations) {
+            long[] reference = new long[TIMING_ROUNDS];
+            long[] current = new long[TIMING_ROUNDS];
+            // the first pass only warms up the JIT
+            for (int pass = 0; pass < 2; pass++) {
+                for (int round = 0; round < TIMING_ROUNDS; round++) {
+                    // alternate the order so that neither side always runs first
+                    if (round % 2 == 0) {
+                        reference[round] = timeReference(operation);
+                        current[round] = timeCurrent(operation);
+                    } else {
+                        current[round] = timeCurrent(operation);
+                        reference[round] = timeReference(operation);
+                    }
+                }
+            }
+            long referenceMedian = median(reference);
+            long currentMedian = median(current);
+            report.append(String.format("%n  %-24s reference %8d us, current %8d us, speed-up %.2fx",
+                    operation.name, referenceMedian / 1000, currentMedian / 1000,
+                    (double) referenceMedian / currentMedian));
+        }
+        Assert.assertTrue(sink != 0);
+        logger.info(report.toString());
+    }
+
+    private static long timeReference(Operation operation) {
+        long start = System.nanoTime();
+        int result = operation.runReference();
+        long elapsed = System.nanoTime() - start;
+        sink += result;
+        return elapsed;
+    }
+
+    private static long timeCurrent(Operation operation) {
+        long start = System.nanoTime();
+        int result = operation.runCurrent();
+        long elapsed = System.nanoTime() - start;
+        sink += result;
+        return elapsed;
+    }
+
+    private static long median(long[] times) {
+        long[] sorted = times.clone();
+        Arrays.sort(sorted);
+        return sorted[sorted.length / 2];
+    }
+}
@@ -0,0 +1,173 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.fusepool.p3.accept.util;
+
+import java.util.*;
+
+import org.easymock.EasyMock;
+import org.junit.Assert;
+import org.junit.Test;
+
+import javax.activation.MimeType;
+import javax.servlet.http.HttpServletRequest;
+
+/**
+ * Checks {@link AcceptPreference} against {@link ReferenceAcceptPreference}
+ * on randomly generated headers.
+ *
+ * @see AcceptPreferenceBenchmark
+ */
+public class AcceptPreferenceDifferentialTest {
+
+    static final long SEED = 20141118L;
+
+    private static final int CASES = 3000;
+
+    @Test
+    public void matchesReferenceImplementation() {
+        AcceptHeaderGenerator generator = new AcceptHeaderGenerator(SEED);
+        for (int i = 0; i < CASES; i++) {
+            String header = generator.nextHeader();
+            Set<MimeType> supported = generator.nextSupportedTypes();
+            List<MimeType> probes = new ArrayList<MimeType>(supported);
+            probes.add(generator.nextType());
+            probes.add(generator.nextType());
+            checkCase("case " + i + " \"" + header + "\"", header, supported, probes);
+        }
+    }
+
+    @Test
+    public void normalizedFormIgnoresOrder() {
+        AcceptHeaderGenerator generator = new AcceptHeaderGenerator(SEED);
+        for (int i = 0; i < CASES; i++) {
+            String header = generator.nextHeader();
+            String shuffled = generator.shuffle(header);
+            AcceptPreference original;
+            try {
+                original = AcceptPreference.fromString(header);
+            } catch (RuntimeException ex) {
+                continue;
+            }
+            AcceptPreference reordered = AcceptPreference.fromString(shuffled);
+            String message = "case " + i + " \"" + header + "\" vs \"" + shuffled + "\"";
+            Assert.assertEquals(message, original.toNormalizedString(), reordered.toNormalizedString());
+            Assert.assertEquals(message, original.getFingerprint(), reordered.getFingerprint());
+        }
+    }
+
+    @Test
+    public void mergedHeadersMatchReference() {
+        AcceptHeaderGenerator generator = new AcceptHeaderGenerator(SEED);
+        for (int i = 0; i < CASES / 3; i++) {
+            int count = 1 + (i % 3);
+            Vector<String> headers = new Vector<String>();
+            List<ReferenceAcceptPreference> references = new ArrayList<ReferenceAcceptPreference>();
+            List<AcceptPreference> currents = new ArrayList<AcceptPreference>();
+            while (headers.size() < count) {
+                String header = generator.nextHeader();
+                try {
+                    references.add(ReferenceAcceptPreference.fromString(header));
+                } catch (RuntimeException ex) {
+                    // fromString failures are compared in matchesReferenceImplementation
+                    continue;
+                }
+                currents.add(AcceptPreference.fromString(header));
+                headers.add(header);
+            }
+            Set<MimeType> supported = generator.nextSupportedTypes();
+            List<MimeType> probes = new ArrayList<MimeType>(supported);
+            probes.add(generator.nextType());
+            probes.add(generator.nextType());
+            String message = "merged case " + i + " " + headers;
+            ReferenceAcceptPreference reference = ReferenceAcceptPreference.fromHeaders(references);
+
+            checkEquivalent(message + " fromHeaders", reference, AcceptPreference.fromHeaders(currents),
+                    supported, probes);
+
+            HttpServletRequest request = EasyMock.createMock(HttpServletRequest.class);
+            EasyMock.expect(request.getHeaders(AcceptPreference.RFC7231_HEADER))
+                    .andReturn(headers.elements())
+                    .atLeastOnce();
+            EasyMock.replay(request);
+            checkEquivalent(message + " fromRequest", reference, AcceptPreference.fromRequest(request),
+                    supported, probes);
+        }
+    }
+
+    private void checkCase(String message, String header, Set<MimeType> supported, List<MimeType> probes) {
+        ReferenceAcceptPreference reference = null;
+        AcceptPreference current = null;
+        String referenceFailure = null;
+        String currentFailure = null;
+        try {
+            reference = ReferenceAcceptPreference.fromString(header);
+        } catch (RuntimeException ex) {
+            referenceFailure = ex.getClass().getName();
+        }
+        try {
+            current = AcceptPreference.fromString(header);
+        } catch (RuntimeException ex) {
+            currentFailure = ex.getClass().getName();
+        }
+        Assert.assertEquals(message + ": fromString", referenceFailure, currentFailure);
+        if (reference == null) {
+            return;
+        }
+        checkEquivalent(message, reference, current, supported, probes);
+    }
+
+    private void checkEquivalent(String message, ReferenceAcceptPreference reference, AcceptPreference current,
+            Set<MimeType> supported, List<MimeType> probes) {
+
+        Assert.assertEquals(message + ": entries", reference.getEntries().toString(), current.getEntries().toString());
+        Assert.assertEquals(message + ": getPreferredAccept()",
+                preferredAccept(reference), preferredAccept(current));
+        Assert.assertEquals(message + ": getPreferredAccept(" + supported + ")",
+                String.valueOf(reference.getPreferredAccept(supported)),
+                String.valueOf(current.getPreferredAccept(supported)));
+        for (MimeType probe : probes) {
+            Assert.assertEquals(message + ": getAcceptedQuality(" + probe + ")",
+                    reference.getAcceptedQuality(probe), current.getAcceptedQuality(probe));
+        }
+
+        List<MimeType> expected = new ArrayList<MimeType>(supported);
+        Collections.sort(expected, new ReferenceAcceptPreference.Comparator(reference));
+        RankedTypes ranked = current.rank(new CandidateSet(supported));
+        Assert.assertEquals(message + ": rank size", expected.size(), ranked.size());
+        for (int i = 0; i < expected.size(); i++) {
+            Assert.assertEquals(message + ": rank " + i, expected.get(i).toString(), ranked.getType(i).toString());
+            Assert.assertEquals(message + ": rank quality " + i,
+                    reference.getAcceptedQuality(expected.get(i)), ranked.getQuality(i));
+            Assert.assertEquals(message + ": rank matched range " + i,
+                    String.valueOf(reference.getAcceptingRange(expected.get(i))),
+                    String.valueOf(ranked.getMatchedRange(i)));
+        }
+    }
+
+    private static String preferredAccept(ReferenceAcceptPreference preference) {
+        try {
+            return preference.getPreferredAccept().toString();
+        } catch (RuntimeException ex) {
+            return ex.getClass().getName();
+        }
+    }
+
+    private static String preferredAccept(AcceptPreference preference) {
+        try {
+            return preference.getPreferredAccept().toString();
+        } catch (RuntimeException ex) {
+            return ex.getClass().getName();
+        }
+    }
+}
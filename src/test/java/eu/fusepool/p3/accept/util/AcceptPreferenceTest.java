@@ -177,6 +177,138 @@ public class AcceptPreferenceTest {
         Assert.assertEquals("text/html", acceptPreference.getPreferredAccept(supported).getBaseType());
     }
 
+    @Test
+    public void equivalentHeadersHaveSameNormalizedForm() {
+        AcceptPreference a = AcceptPreference.fromString("text/html;q=1, image/png;level=1;q=.5,text/*;q=0.25");
+        AcceptPreference b = AcceptPreference.fromString("Text/*; q=0.250,image/png; q=0.5; level=1,text/html");
+
+        Assert.assertEquals("text/html,image/png;level=1;q=0.5,text/*;q=0.25", a.toNormalizedString());
+        Assert.assertEquals(a.toNormalizedString(), b.toNormalizedString());
+        Assert.assertEquals(a.getFingerprint(), b.getFingerprint());
+
+        AcceptPreference c = AcceptPreference.fromString("text/html;q=0.9, image/png;level=1;q=.5,text/*;q=0.25");
+        Assert.assertNotEquals(a.getFingerprint(), c.getFingerprint());
+    }
+
+    @Test
+    public void variantKeyDependsOnSelectedType() {
+        CandidateSet supported = new CandidateSet(Arrays.asList(mimeType("text/turtle"), mimeType("application/rdf+xml")));
+
+        AcceptPreference turtle = AcceptPreference.fromString("text/turtle,*/*;q=0.1");
+        AcceptPreference anyText = AcceptPreference.fromString("application/rdf+xml;q=0.5, text/*");
+
+        Assert.assertEquals("text/turtle", turtle.rank(supported).getVariantKey());
+        Assert.assertEquals(turtle.rank(supported).getVariantKey(), anyText.rank(supported).getVariantKey());
+        RankedTypes none = AcceptPreference.fromString("image/png").rank(supported);
+        Assert.assertNull(none.getSelectedType());
+        Assert.assertNull(none.getVariantKey());
+    }
+
+    @Test
+    public void quotedParametersStayDistinct() {
+        AcceptPreference quoted = AcceptPreference.fromString("text/html;p=\"a;q=0.5\"");
+        AcceptPreference unquoted = AcceptPreference.fromString("text/html;p=a;q=0.5");
+
+        Assert.assertEquals("text/html;p=\"a;q=0.5\"", quoted.toNormalizedString());
+        Assert.assertEquals("text/html;p=a;q=0.5", unquoted.toNormalizedString());
+        Assert.assertNotEquals(quoted.getFingerprint(), unquoted.getFingerprint());
+        Assert.assertEquals("application/ld+json;profile=\"http://example.org/p\"",
+                MimeUtils.normalize(mimeType("application/ld+json; profile=\"http://example.org/p\"")));
+    }
+
+    @Test
+    public void variantKeyDoesNotDependOnSetOrder() {
+        AcceptPreference any = AcceptPreference.fromString("*/*");
+        Set<MimeType> first = new HashSet<MimeType>();
+        first.add(mimeType("text/turtle"));
+        first.add(mimeType("application/rdf+xml"));
+        Set<MimeType> second = new HashSet<MimeType>();
+        second.add(mimeType("application/rdf+xml"));
+        second.add(mimeType("text/turtle"));
+
+        RankedTypes firstRanked = any.rank(new CandidateSet(first));
+        RankedTypes secondRanked = any.rank(new CandidateSet(second));
+        Assert.assertEquals(firstRanked.getVariantKey(), secondRanked.getVariantKey());
+        Assert.assertEquals(firstRanked.getSelectedType().toString(), secondRanked.getSelectedType().toString());
+    }
+
+    @Test
+    public void variantKeyMatchesServedType() {
+        CandidateSet wildcard = new CandidateSet(Arrays.asList(mimeType("text/*")));
+        RankedTypes ranked = AcceptPreference.fromString("text/html").rank(wildcard);
+        Assert.assertEquals(MimeUtils.normalize(ranked.getSelectedType()), ranked.getVariantKey());
+
+        CandidateSet rdf = new CandidateSet(Arrays.asList(mimeType("text/turtle"),
+                mimeType("application/rdf+xml;charset=utf-8")));
+        ranked = AcceptPreference.fromString("application/rdf+xml;q=0.9, text/turtle;q=0.5").rank(rdf);
+        Assert.assertEquals("application/rdf+xml; charset=utf-8", ranked.getSelectedType().toString());
+        Assert.assertEquals("application/rdf+xml;charset=utf-8", ranked.getVariantKey());
+    }
+
+    @Test
+    public void rankingMatchesComparatorOrder() {
+        AcceptPreference acceptHeader = AcceptPreference.fromString("text/*;q=0.5, text/turtle, image/*;q=0.2, application/pdf;q=0");
+        List<MimeType> supported = Arrays.asList(mimeType("application/pdf"), mimeType("text/csv"),
+                mimeType("image/png"), mimeType("text/turtle"), mimeType("application/json"),
+                mimeType("text/html"));
+
+        RankedTypes ranked = acceptHeader.rank(new CandidateSet(supported));
+
+        List<MimeType> expected = new ArrayList<MimeType>(supported);
+        Collections.sort(expected, new MimeTypeComparator(acceptHeader));
+        Assert.assertEquals(expected.size(), ranked.size());
+        for (int i = 0; i < ranked.size(); i++) {
+            Assert.assertEquals(expected.get(i).toString(), ranked.getType(i).toString());
+            Assert.assertEquals(acceptHeader.getAcceptedQuality(expected.get(i)), ranked.getQuality(i));
+        }
+        Assert.assertEquals(4, ranked.getAcceptableCount());
+        Assert.assertEquals("text/turtle", ranked.getType(0).toString());
+        Assert.assertEquals("text/turtle", ranked.getMatchedRange(0).toString());
+        Assert.assertEquals("text/*", ranked.getMatchedRange(1).toString());
+        Assert.assertNull(ranked.getMatchedRange(4));
+        Assert.assertEquals("application/pdf", ranked.getMatchedRange(5).toString());
+
+        ranked.getMatchedRange(1).setParameter("level", "1");
+        Assert.assertEquals("text/*", ranked.getMatchedRange(1).toString());
+        Assert.assertEquals(500, acceptHeader.getAcceptedQuality(mimeType("text/csv")));
+
+        RankedTypes.Scratch scratch = new RankedTypes.Scratch();
+        RankedTypes again = acceptHeader.rank(new CandidateSet(supported), scratch);
+        Assert.assertEquals(ranked.toString(), again.toString());
+    }
+
+    @Test
+    public void warmupPopulatesCache() {
+        HeaderCache cache = new HeaderCache(2);
+        Warmup.warmUp(cache, Arrays.asList("text/html;q=abc", "*/*", "text/*"),
+                Warmup.DEFAULT_SUPPORTED_TYPES, 1);
+
+        Assert.assertEquals(2, cache.size());
+        AcceptPreference cached = cache.get("text/*");
+        Assert.assertSame(cached, cache.get("text/*"));
+
+        for (int i = 0; i < 10; i++) {
+            cache.get("image/x-" + i);
+        }
+        Assert.assertEquals(4, cache.size());
+        Assert.assertSame(cached, cache.get("text/*"));
+
+        AcceptPreference image = cache.get("image/png");
+        Assert.assertSame(image, cache.get("image/png"));
+        image.getPreferredAccept().setParameter("level", "1");
+        image.getEntries().get(0).getMediaType().setParameter("level", "2");
+        Assert.assertEquals("image/png", image.getPreferredAccept().toString());
+    }
+
+    @Test
+    public void defaultSeedHeadersAreWellFormed() {
+        for (String header : Warmup.DEFAULT_SEED_HEADERS) {
+            Assert.assertTrue(header, Warmup.isWellFormed(header));
+        }
+        Assert.assertFalse(Warmup.isWellFormed("text/html, image/gif, image/jpeg, *; q=.2, */*; q=.2"));
+        Assert.assertFalse(Warmup.isWellFormed("text/html;q=abc"));
+    }
+
     private void assertEntriesMatch(AcceptPreference header, String... types) {
         List<AcceptPreference.AcceptHeaderEntry> entries = header.getEntries();
         Set<String> typeSet = new HashSet<String>(Arrays.asList(types));
@@ -0,0 +1,325 @@
+/*
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package eu.fusepool.p3.accept.util;
+
+import java.util.*;
+
+import javax.activation.MimeType;
+import javax.activation.MimeTypeParameterList;
+import javax.activation.MimeTypeParseException;
+
+/**
+ * The straightforward implementation of header parsing and negotiation as in
+ * {@link AcceptPreference}, {@link MimeTypeComparator} and {@link MimeUtils}
+ * 1.0.1, kept as the oracle against which optimized implementations are
+ * checked. It must not call into the production classes it is compared with.
+ * Do not optimize this class.
+ */
+class ReferenceAcceptPreference {
+
+    private static final MimeType WILDCARD_TYPE = mimeType("*/*");
+
+    private static final String MIME_TYPE_WILDCARD = "*";
+
+    private static final Map<MimeType, Float> fallBackQ = new HashMap<MimeType, Float>();
+
+    static {
+        fallBackQ.put(mimeType("application/xhtml+xml"), 1.0f);
+        fallBackQ.put(mimeType("text/html"), 0.9f);
+        fallBackQ.put(mimeType("application/rdf+xml"), 0.8f);
+    }
+
+    /**
+     * Sorts media types like {@link MimeTypeComparator}, with an optional
+     * reference accept header.
+     */
+    static class Comparator implements java.util.Comparator<MimeType> {
+
+        private final ReferenceAcceptPreference acceptHeader;
+
+        Comparator(ReferenceAcceptPreference acceptHeader) {
+            this.acceptHeader = acceptHeader;
+        }
+
+        @Override
+        public int compare(MimeType o1, MimeType o2) {
+            if (o1.equals(o2)) {
+                return 0;
+            }
+            if (acceptHeader != null) {
+                if (acceptHeader.getAcceptedQuality(o1) > acceptHeader.getAcceptedQuality(o2)) {
+                    return -1;
+                }
+                if (acceptHeader.getAcceptedQuality(o1) < acceptHeader.getAcceptedQuality(o2)) {
+                    return 1;
+                }
+            }
+            int inconsistentCompare = inconsistentCompare(o1, o2);
+            if (inconsistentCompare == 0) {
+                return o1.toString().compareTo(o2.toString());
+            } else {
+                return inconsistentCompare;
+            }
+        }
+    }
+
+    static class Entry implements Comparable<Entry> {
+
+        private final Comparator mediaTypeComparator = new Comparator(null);
+        final MimeType mediaType;
+        final int quality;
+
+        Entry(MimeType mediaType) {
+            MimeTypeParameterList parametersWithoutQ = mediaType.getParameters();
+
+            String qValue = parametersWithoutQ.get("q");
+            parametersWithoutQ.remove("q");
+
+            this.mediaType = mimeType(mediaType.getBaseType() + parametersWithoutQ.toString());
+
+            if (qValue == null) {
+                quality = 1000;
+            } else {
+                quality = (int) (Float.parseFloat(qValue) * 1000);
+            }
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            if (equals(o)) {
+                return 0;
+            }
+            if (quality == o.quality) {
+                return mediaTypeComparator.compare(mediaType, o.mediaType);
+            }
+            return (o.quality - quality);
+        }
+
+        @Override
+        public String toString() {
+            return mediaType + " with q=" + quality + ";";
+        }
+    }
+
+    static ReferenceAcceptPreference fromString(String header) {
+        if (header == null) {
+            throw new NullPointerException("Header string can't be null.");
+        }
+
+        List<String> entries = new ArrayList<String>();
+        for (String entry : header.split(",")) {
+            entries.add(entry);
+        }
+
+        return new ReferenceAcceptPreference(entries);
+    }
+
+    private final TreeSet<Entry> entries;
+
+    ReferenceAcceptPreference(List<String> entryStrings) {
+        entries = new TreeSet<Entry>();
+        if ((entryStrings == null) || (entryStrings.size() == 0)) {
+            entries.add(new Entry(WILDCARD_TYPE));
+        } else {
+            for (String string : entryStrings) {
+                try {
+                    entries.add(new Entry(new MimeType(string)));
+                } catch (MimeTypeParseException ex) {
+                    // ignored like in AcceptPreference, which logs it
+                }
+            }
+        }
+    }
+
+    static ReferenceAcceptPreference fromHeaders(Collection<ReferenceAcceptPreference> headers) {
+        TreeSet<Entry> entries = new TreeSet<Entry>();
+        for (ReferenceAcceptPreference header : headers) {
+            entries.addAll(header.entries);
+        }
+        return new ReferenceAcceptPreference(entries);
+    }
+
+    ReferenceAcceptPreference(TreeSet<Entry> entries) {
+        this.entries = entries;
+    }
+
+    List<Entry> getEntries() {
+        return new ArrayList<Entry>(entries);
+    }
+
+    MimeType getPreferredAccept() {
+        return entries.first().mediaType;
+    }
+
+    MimeType getPreferredAccept(Set<MimeType> supportedTypes) {
+        for (Entry clientSupported : entries) {
+            for (MimeType serverSupported : supportedTypes) {
+                if (isSameOrSubtype(serverSupported, clientSupported.mediaType)) {
+                    return serverSupported;
+                }
+            }
+        }
+
+        return null;
+    }
+
+    int getAcceptedQuality(MimeType type) {
+        for (Entry acceptHeaderEntry : entries) {
+            if (isSameOrSubtype(type, acceptHeaderEntry.mediaType)) {
+                return acceptHeaderEntry.quality;
+            }
+        }
+
+        Object[] reverseEntries = entries.toArray();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = (Entry) reverseEntries[i];
+            if (isSameOrSubtype(entry.mediaType, type)) {
+                return entry.quality;
+            }
+        }
+
+        return 0;
+    }
+
+    /**
+     * @return the media range that determines the quality of type in
+     * {@link #getAcceptedQuality(MimeType)}: the first entry including type
+     * or else the last entry included in type, <code>null</code> if none.
+     */
+    MimeType getAcceptingRange(MimeType type) {
+        for (Entry acceptHeaderEntry : entries) {
+            if (isSameOrSubtype(type, acceptHeaderEntry.mediaType)) {
+                return acceptHeaderEntry.mediaType;
+            }
+        }
+
+        Object[] reverseEntries = entries.toArray();
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            Entry entry = (Entry) reverseEntries[i];
+            if (isSameOrSubtype(entry.mediaType, type)) {
+                return entry.mediaType;
+            }
+        }
+
+        return null;
+    }
+
+    static boolean isSameOrSubtype(MimeType t1, MimeType t2) {
+        String type1 = t1.getPrimaryType();
+        String subtype1 = t1.getSubType();
+        String type2 = t2.getPrimaryType();
+        String subtype2 = t2.getSubType();
+
+        if (type2.equals(MIME_TYPE_WILDCARD) && subtype2.equals(MIME_TYPE_WILDCARD)) {
+            return true;
+        } else if (type1.equalsIgnoreCase(type2) && subtype2.equals(MIME_TYPE_WILDCARD)) {
+            return true;
+        } else {
+            return type1.equalsIgnoreCase(type2) && subtype1.equalsIgnoreCase(subtype2);
+        }
+    }
+
+    static int inconsistentCompare(MimeType o1, MimeType o2) {
+        if ((o1 == null) && (o2 == null)) {
+            return 0;
+        }
+        if (o1 == null) {
+            return 1;
+        }
+        if (o2 == null) {
+            return -1;
+        }
+        int wilchCharComparison = compareByWildCardCount(o1, o2);
+        if (wilchCharComparison == 0) {
+            float q1 = getQ(o1);
+            float q2 = getQ(o2);
+            if (q1 == q2) {
+                return fallBackCompare(o1, o2);
+            }
+            if (q1 > q2) {
+                return -1;
+            } else {
+                return 1;
+            }
+        } else {
+            return wilchCharComparison;
+        }
+    }
+
+    static int compareByWildCardCount(MimeType o1, MimeType o2) {
+        int w1 = countWildChars(o1);
+        int w2 = countWildChars(o2);
+        if (w1 == w2) {
+            return 0;
+        }
+        if (w1 < w2) {
+            return -1;
+        } else {
+            return 1;
+        }
+    }
+
+    static int countWildChars(MimeType m) {
+        if (m.getPrimaryType().equals("*")) {
+            return 2;
+        }
+        if (m.getSubType().equals("*")) {
+            return 1;
+        }
+        return 0;
+    }
+
+    private static int fallBackCompare(MimeType o1, MimeType o2) {
+        float q1 = getFallBackQ(o1);
+        float q2 = getFallBackQ(o2);
+        if (q1 == q2) {
+            return 0;
+        }
+        if (q1 > q2) {
+            return -1;
+        } else {
+            return 1;
+        }
+    }
+
+    private static float getQ(MimeType m) {
+        String qString = m.getParameters().get("q");
+        if (qString == null) {
+            return 1;
+        } else {
+            return Float.parseFloat(qString);
+        }
+    }
+
+    private static float getFallBackQ(MimeType m) {
+        if (fallBackQ.containsKey(m)) {
+            return fallBackQ.get(m);
+        } else {
+            return 0f;
+        }
+    }
+
+    static MimeType mimeType(String type) {
+        try {
+            return new MimeType(type);
+        } catch (MimeTypeParseException ex) {
+            throw new RuntimeException(ex);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return entries.toString();
+    }
+}